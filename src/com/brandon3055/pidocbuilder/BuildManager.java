@@ -55,6 +55,7 @@ public class BuildManager {
     }
 
     public static void loadManifests() {
+        Canonicalizer.loadConfig(piRepoFolder);
         readRepository();
         readBuildManifests();
     }
@@ -106,10 +107,15 @@ public class BuildManager {
                 if (lastBuild == null) {
                     requiresBuild = true;
                 }
+                else if (!lastBuild.getManifestFile().exists()) {
+                    Main.error("Manifest for the last build of mod version " + manifest.modVersion + " is missing from the objects folder!");
+                    requiresBuild = true;
+                }
                 else {
                     JsonObject obj = FileHelper.readObj(lastBuild.getManifestFile());
                     ModDocManifest lastManifest = ModDocManifest.fromJson(obj, manifest.modVersion);
-                    requiresBuild = !manifest.equals(lastManifest);
+                    //Objects may have been removed from the objects folder (e.g. quarantined by the scrubber)
+                    requiresBuild = !manifest.equals(lastManifest) || lastManifest.hasMissingObjects();
                 }
 
                 if (requiresBuild) {
@@ -176,7 +182,15 @@ public class BuildManager {
         File manifestFile = new File(BuildManager.objectsFolder, FileHelper.hashFileLoc(hash));
         FileUtils.copyFile(temp, manifestFile);
         temp.delete();
-        bm.addBuild(Main.PI_REPO_URL + "/objects/" + FileHelper.hashFileLoc(hash), manifest.modVersion);
+
+        //If the manifest is identical to the last build then this was only a repair of missing objects
+        String manifestURL = Main.PI_REPO_URL + "/objects/" + FileHelper.hashFileLoc(hash);
+        BuildManifest.Build lastBuild = bm.getLatestForVersion(manifest.modVersion);
+        if (lastBuild != null && lastBuild.manifestURL.equals(manifestURL)) {
+            Main.log("Restored missing objects for existing build " + lastBuild.buildNumber);
+            return;
+        }
+        bm.addBuild(manifestURL, manifest.modVersion);
     }
 
     private static BuildManifest getBuildManifest(String modId) {
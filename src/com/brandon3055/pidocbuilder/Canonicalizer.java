@@ -0,0 +1,218 @@
+package com.brandon3055.pidocbuilder;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Converts repo files to a canonical form before they are hashed and written to the objects folder.
+ * This means formatting only changes (line endings, indentation, etc.) do not produce a new hash and trigger a rebuild.
+ * <p>
+ * The mode used for each file type is configured by canonicalize.json in the root of the pi repo folder
+ * which maps a file extension to a mode name e.g. {"json": "minify", "md": "line_endings"}
+ * Files with no configured mode are stored exactly as they are in the repo.
+ */
+public class Canonicalizer {
+
+    public static final String CONFIG_FILE = "canonicalize.json";
+
+    //file extension -> mode
+    private static Map<String, Mode> modeMap = new HashMap<>();
+
+    public static void loadConfig(File piRepoFolder) {
+        modeMap.clear();
+        File configFile = new File(piRepoFolder, CONFIG_FILE);
+        if (!configFile.exists()) return;
+
+        Main.log("Reading canonicalization config: " + configFile);
+        JsonObject obj = FileHelper.readObj(configFile);
+        obj.entrySet().forEach(entry -> {
+            Mode mode = Mode.byName(entry.getValue().getAsString());
+            if (mode == null) {
+                throw new RuntimeException("Invalid canonicalization mode " + entry.getValue() + " for file type " + entry.getKey());
+            }
+            modeMap.put(entry.getKey().toLowerCase(), mode);
+        });
+    }
+
+    /**
+     * @param report If true any problems canonicalizing the file will be logged. Should only be true for the first
+     *               call for a given file in a build so problems are not reported repeatedly.
+     * @return the canonical contents of the given file. This is what gets hashed and written to the objects folder.
+     */
+    public static byte[] canonicalize(File file, boolean report) {
+        try {
+            byte[] bytes = FileUtils.readFileToByteArray(file);
+            Mode mode = getMode(file);
+            if (mode == Mode.NONE) {
+                return bytes;
+            }
+
+            String text;
+            try {
+                text = StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(ByteBuffer.wrap(bytes))
+                        .toString();
+            }
+            catch (CharacterCodingException e) {
+                if (report) {
+                    Main.error("File " + file + " is not valid UTF-8. It will be stored unchanged. " + e);
+                }
+                return bytes;
+            }
+
+            text = normalizeLineEndings(text);
+            switch (mode) {
+                case TRIM:
+                    text = trimLines(text);
+                    break;
+                case MINIFY:
+                case SORTED:
+                    try {
+                        JsonElement element = parseJson(text);
+                        text = (mode == Mode.SORTED ? sortKeys(element) : element).toString();
+                    }
+                    catch (Throwable e) {
+                        if (report) {
+                            Main.error("Unable to parse " + file + " as json. Only line endings will be normalized. " + e);
+                        }
+                    }
+                    break;
+            }
+            return text.getBytes(StandardCharsets.UTF_8);
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Mode getMode(File file) {
+        String name = file.getName();
+        int i = name.lastIndexOf('.');
+        if (i == -1) return Mode.NONE;
+        return modeMap.getOrDefault(name.substring(i + 1).toLowerCase(), Mode.NONE);
+    }
+
+    private static String normalizeLineEndings(String text) {
+        return text.replace("\r\n", "\n").replace('\r', '\n');
+    }
+
+    private static String trimLines(String text) {
+        return text.replaceAll("[ \\t]+\n", "\n").replaceAll("[ \\t]+$", "");
+    }
+
+    /**
+     * Strictly parses the given json. Throws if the document is not valid json, contains duplicate keys
+     * or has anything after the root element. Any of these would otherwise be silently dropped when the json is re written.
+     */
+    private static JsonElement parseJson(String text) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(text));
+        reader.setLenient(false);
+        JsonElement element = readElement(reader);
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new MalformedJsonException("Unexpected content after the end of the json document");
+        }
+        return element;
+    }
+
+    private static JsonElement readElement(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                JsonObject obj = new JsonObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName();
+                    if (obj.has(key)) {
+                        throw new MalformedJsonException("Duplicate key " + key);
+                    }
+                    obj.add(key, readElement(reader));
+                }
+                reader.endObject();
+                return obj;
+            case BEGIN_ARRAY:
+                JsonArray array = new JsonArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.add(readElement(reader));
+                }
+                reader.endArray();
+                return array;
+            case STRING:
+                return new JsonPrimitive(reader.nextString());
+            case NUMBER:
+                //Keep the number exactly as it was written
+                return new JsonPrimitive(new LazilyParsedNumber(reader.nextString()));
+            case BOOLEAN:
+                return new JsonPrimitive(reader.nextBoolean());
+            case NULL:
+                reader.nextNull();
+                return JsonNull.INSTANCE;
+            default:
+                throw new MalformedJsonException("Unexpected token " + reader.peek());
+        }
+    }
+
+    private static JsonElement sortKeys(JsonElement element) {
+        if (element.isJsonObject()) {
+            Map<String, JsonElement> sorted = new TreeMap<>();
+            element.getAsJsonObject().entrySet().forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+            JsonObject obj = new JsonObject();
+            sorted.forEach((key, value) -> obj.add(key, sortKeys(value)));
+            return obj;
+        }
+        else if (element.isJsonArray()) {
+            JsonArray array = new JsonArray();
+            element.getAsJsonArray().forEach(value -> array.add(sortKeys(value)));
+            return array;
+        }
+        return element;
+    }
+
+    public enum Mode {
+        /** Store the file as is. */
+        NONE("none"),
+        /** Convert CRLF and CR line endings to LF. */
+        LINE_ENDINGS("line_endings"),
+        /** Normalize line endings and remove trailing whitespace. Not safe for markdown that uses trailing spaces for line breaks. */
+        TRIM("trim"),
+        /** Re write json with all whitespace removed. Key order is preserved. Invalid json or json with duplicate keys only has its line endings normalized. */
+        MINIFY("minify"),
+        /** Re write json with all whitespace removed and object keys in sorted order. */
+        SORTED("sorted");
+
+        private final String name;
+
+        Mode(String name) {
+            this.name = name;
+        }
+
+        public static Mode byName(String name) {
+            for (Mode mode : values()) {
+                if (mode.name.equals(name)) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+}
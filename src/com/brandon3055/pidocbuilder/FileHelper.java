@@ -23,7 +23,7 @@ import java.util.function.Predicate;
 public class FileHelper {
     public static String getFileHash(File file) {
         try {
-            return Hashing.sha1().hashBytes(FileUtils.readFileToByteArray(file)).toString();
+            return getHash(FileUtils.readFileToByteArray(file));
         }
         catch (IOException e) {
             throw new RuntimeException(e);
@@ -31,6 +31,10 @@ public class FileHelper {
 
     }
 
+    public static String getHash(byte[] bytes) {
+        return Hashing.sha1().hashBytes(bytes).toString();
+    }
+
     /**
      * Finds all files in the directory and sub directories that match the predicate and adds them to the list.
      */
@@ -1,5 +1,6 @@
 package com.brandon3055.pidocbuilder;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -12,6 +13,12 @@ import java.io.IOException;
  *      - Compare to the latest existing build for that version
  *      - If something has changed then build the version and add it to the build manifest
  *
+ * Object scrub (run with "scrub <pi web server directory> <scrub data directory> [bytes per second] [threads] [quarantine]"):
+ * Defaults to 1MB per second using 2 threads with quarantine disabled. A rate of 0 removes the limit.
+ *
+ * - Re-hash every file in the objects folder and report any that do not match their hash location
+ * - Optionally move mismatched objects to the quarantine folder in the scrub data directory
+ * - The next build will rebuild any doc version with missing objects
  *
  */
 public class Main {
@@ -21,7 +28,15 @@ public class Main {
     //http://pi.brandon3055.com/objects
     public static final String PI_REPO_URL = "http://pi.brandon3055.com";
 
+    public static final long DEFAULT_SCRUB_BYTES_PER_SECOND = 1024 * 1024;
+    public static final int DEFAULT_SCRUB_THREADS = 2;
+
     public static void main(String[] args) throws InterruptedException, IOException {
+        if (args.length > 0 && args[0].equals("scrub")) {
+            scrub(args);
+            return;
+        }
+
         if (args.length != 2) {
             throw new RuntimeException("Please specify the pi web server directory and the pi ModDocs directory.");
         }
@@ -33,6 +48,23 @@ public class Main {
         Thread.sleep(100);
     }
 
+    private static void scrub(String[] args) throws InterruptedException {
+        if (args.length < 3 || args.length > 6) {
+            throw new RuntimeException("Usage: scrub <pi web server directory> <scrub data directory> [bytes per second (default " + DEFAULT_SCRUB_BYTES_PER_SECOND + ", 0 for unlimited)] [threads (default " + DEFAULT_SCRUB_THREADS + ")] [quarantine (default false)]");
+        }
+
+        long bytesPerSecond = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SCRUB_BYTES_PER_SECOND;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_SCRUB_THREADS;
+        boolean quarantine = args.length > 5 && Boolean.parseBoolean(args[5]);
+
+        ObjectScrubber scrubber = new ObjectScrubber(new File(args[1]), new File(args[2]), bytesPerSecond, threads, quarantine);
+        int failures = scrubber.scrub();
+        Thread.sleep(100);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
     public static void log(Object o) {
         System.out.println(o);
     }
@@ -34,7 +34,7 @@ public class ModDocManifest {
 
     private void addFile(File modFolder, File file, File containingFolder, boolean lang) {
         String path = FileHelper.aPath(file).replace(FileHelper.aPath(modFolder) + "/", "");
-        String hash = FileHelper.getFileHash(file);
+        String hash = FileHelper.getHash(Canonicalizer.canonicalize(file, true));
         String url = Main.PI_REPO_URL + "/objects/" + FileHelper.hashFileLoc(hash);
 
         if (lang) {
@@ -169,6 +169,21 @@ public class ModDocManifest {
         return false;
     }
 
+    /**
+     * @return true if any of the files in this manifest do not exist in the objects folder.
+     */
+    public boolean hasMissingObjects() {
+        List<ManifestFile> files = new ArrayList<>(baseFiles.values());
+        files.addAll(langFiles.values());
+        for (ManifestFile mFile : files) {
+            if (!new File(BuildManager.objectsFolder, FileHelper.hashFileLoc(mFile.fileSha1)).exists()) {
+                Main.error("Object " + FileHelper.hashFileLoc(mFile.fileSha1) + " for " + mFile.filePath + " is missing from the objects folder!");
+                return true;
+            }
+        }
+        return false;
+    }
+
     public int writeObjects() {
         int count = 0;
         count += writeFiles(baseFiles.values());
@@ -184,7 +199,7 @@ public class ModDocManifest {
             File repoFile = new File(BuildManager.piRepoFolder, modId + "/" + modVersion + "/" + mFile.filePath);
             try {
                 count++;
-                FileUtils.copyFile(repoFile, outputFile);
+                FileUtils.writeByteArrayToFile(outputFile, Canonicalizer.canonicalize(repoFile, false));
             }
             catch (IOException e) {
                 outputFile.delete();
@@ -0,0 +1,259 @@
+package com.brandon3055.pidocbuilder;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.RateLimiter;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Re-hashes every file in the objects folder and checks that it still matches the hash it is stored under.
+ * Reads are throttled to a configurable bytes per second limit so this can safely be run against the live web root.
+ * When run from {@link Main} the defaults are {@link Main#DEFAULT_SCRUB_BYTES_PER_SECOND} bytes per second
+ * and {@link Main#DEFAULT_SCRUB_THREADS} threads.
+ * <p>
+ * Every scrub is a full pass over the objects folder. The checkpoint only records which objects have been verified
+ * during the current pass so an interrupted scrub can resume where it left off. It is deleted once the pass completes
+ * so the next scrub re-hashes everything.
+ * <p>
+ * Objects modified within the last few minutes are skipped as they may still be being written by a build.
+ * Objects that fail verification are reported and optionally moved to the quarantine folder.
+ * The next build will detect the missing object and restore it from the repo without adding a new build.
+ */
+public class ObjectScrubber {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long CHECKPOINT_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    private static final long GRACE_PERIOD = TimeUnit.MINUTES.toMillis(5);
+
+    private final File objectsFolder;
+    private final File quarantineFolder;
+    private final File checkpointFile;
+    private final RateLimiter rateLimiter;
+    private final int threads;
+    private final boolean quarantine;
+
+    //Objects already verified in the current pass
+    private final Set<String> verified = new HashSet<>();
+    //Objects verified since the checkpoint was last written
+    private final List<String> pending = new ArrayList<>();
+    private long lastCheckpoint;
+
+    private final List<String> mismatches = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> unreadable = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger recent = new AtomicInteger();
+
+    /**
+     * @param piRoot         The pi web server directory.
+     * @param dataFolder     The folder used to store the checkpoint and quarantined objects. Must not be inside the web server directory.
+     * @param bytesPerSecond The maximum combined read rate of all scrub threads. 0 or less for unlimited.
+     * @param threads        The number of objects to verify in parallel.
+     * @param quarantine     If true objects that fail verification will be moved to the quarantine folder.
+     */
+    public ObjectScrubber(File piRoot, File dataFolder, long bytesPerSecond, int threads, boolean quarantine) {
+        this.objectsFolder = new File(piRoot, "objects");
+        this.quarantineFolder = new File(dataFolder, "quarantine");
+        this.checkpointFile = new File(dataFolder, "scrub_checkpoint.txt");
+        this.rateLimiter = bytesPerSecond > 0 ? RateLimiter.create(bytesPerSecond) : null;
+        this.threads = Math.max(1, threads);
+        this.quarantine = quarantine;
+
+        if (!objectsFolder.exists() || !objectsFolder.isDirectory()) {
+            throw new RuntimeException("The specified PI Root folder does not contain an objects folder!");
+        }
+
+        String rootPath = FileHelper.aPath(piRoot.getAbsoluteFile().toPath().normalize().toFile());
+        String dataPath = FileHelper.aPath(dataFolder.getAbsoluteFile().toPath().normalize().toFile());
+        if (dataPath.equals(rootPath) || dataPath.startsWith(rootPath + "/")) {
+            throw new RuntimeException("The scrub data folder must not be inside the PI Root folder!");
+        }
+
+        if (!dataFolder.exists() && !dataFolder.mkdirs()) {
+            throw new RuntimeException("Unable to create scrub data folder " + dataFolder);
+        }
+    }
+
+    /**
+     * Runs the scrub.
+     *
+     * @return the number of objects that failed verification or could not be read.
+     */
+    public int scrub() throws InterruptedException {
+        readCheckpoint();
+
+        List<File> objects = new ArrayList<>();
+        FileHelper.recursiveCollect(objectsFolder, objects, File::isFile);
+        Main.log("Scrubbing " + objects.size() + " object(s) using " + threads + " thread(s)");
+
+        lastCheckpoint = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (File object : objects) {
+            futures.add(executor.submit(() -> verify(object)));
+        }
+        executor.shutdown();
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            }
+            catch (ExecutionException e) {
+                Main.error("Scrub task failed! " + e.getCause());
+            }
+        }
+
+        //The pass is complete so the next scrub must start from scratch.
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            Main.error("Failed to delete scrub checkpoint " + checkpointFile);
+        }
+
+        Main.log("Scrub complete. Verified " + processed.get() + ", skipped " + skipped.get() + " already verified this pass, skipped " + recent.get() + " recently modified, found " + mismatches.size() + " mismatch(es) and " + unreadable.size() + " unreadable object(s)");
+        mismatches.forEach(path -> Main.error("Corrupt object: " + path));
+        unreadable.forEach(path -> Main.error("Unreadable object: " + path));
+        return mismatches.size() + unreadable.size();
+    }
+
+    private void verify(File file) {
+        String path = objectPath(file);
+        synchronized (this) {
+            if (verified.contains(path)) {
+                skipped.incrementAndGet();
+                return;
+            }
+        }
+
+        long modified = file.lastModified();
+        if (isRecent(modified)) {
+            recent.incrementAndGet();
+            return;
+        }
+
+        String hash;
+        try {
+            hash = hashThrottled(file);
+        }
+        catch (IOException e) {
+            processed.incrementAndGet();
+            unreadable.add(path);
+            Main.error("Unable to read object " + path + " " + e);
+            return;
+        }
+
+        //The object was modified while it was being hashed so the result cannot be trusted.
+        if (file.lastModified() != modified) {
+            recent.incrementAndGet();
+            return;
+        }
+
+        processed.incrementAndGet();
+        if (path.equals(FileHelper.hashFileLoc(hash))) {
+            checkpoint(path);
+        }
+        else {
+            mismatches.add(path);
+            Main.error("Object " + path + " does not match its hash! Actual: " + hash);
+            if (quarantine) {
+                quarantine(file, path);
+            }
+        }
+    }
+
+    private boolean isRecent(long modified) {
+        return System.currentTimeMillis() - modified < GRACE_PERIOD;
+    }
+
+    private String hashThrottled(File file) throws IOException {
+        Hasher hasher = Hashing.sha1().newHasher();
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                if (rateLimiter != null && read > 0) {
+                    rateLimiter.acquire(read);
+                }
+                hasher.putBytes(buffer, 0, read);
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(is);
+        }
+        return hasher.hash().toString();
+    }
+
+    private void quarantine(File file, String path) {
+        File target = new File(quarantineFolder, path);
+        try {
+            if (target.exists()) {
+                target.delete();
+            }
+            FileUtils.moveFile(file, target);
+            Main.log("Moved " + path + " to quarantine");
+        }
+        catch (IOException e) {
+            Main.error("Failed to quarantine object " + path + " " + e);
+        }
+    }
+
+    private String objectPath(File file) {
+        return FileHelper.aPath(file).replace(FileHelper.aPath(objectsFolder) + "/", "");
+    }
+
+    private void readCheckpoint() {
+        if (!checkpointFile.exists()) return;
+        Main.log("Resuming scrub from checkpoint: " + checkpointFile);
+        try {
+            //The last line may be incomplete if the previous scrub was killed mid write. It simply wont match an object.
+            verified.addAll(FileUtils.readLines(checkpointFile, StandardCharsets.UTF_8));
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Records a verified object. New entries are appended to the checkpoint file at most once per checkpoint interval.
+     */
+    private synchronized void checkpoint(String path) {
+        verified.add(path);
+        pending.add(path);
+        if (System.currentTimeMillis() - lastCheckpoint < CHECKPOINT_INTERVAL) {
+            return;
+        }
+        flushCheckpoint();
+    }
+
+    private synchronized void flushCheckpoint() {
+        lastCheckpoint = System.currentTimeMillis();
+        if (pending.isEmpty()) return;
+        Writer writer = null;
+        try {
+            writer = new FileWriter(checkpointFile, true);
+            for (String path : pending) {
+                writer.write(path);
+                writer.write("\n");
+            }
+            writer.flush();
+            pending.clear();
+        }
+        catch (IOException e) {
+            Main.error("Failed to write scrub checkpoint! " + e);
+        }
+        finally {
+            IOUtils.closeQuietly(writer);
+        }
+    }
+}